@@ -0,0 +1,433 @@
+package org.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.BaseStream;
+import java.util.stream.Collectors;
+
+// Асинхронный фасад базы данных: операции возвращают CompletableFuture и выполняются в исполнителе
+// (по умолчанию - виртуальные потоки), файлы читаются и пишутся блоками через AsynchronousFileChannel.
+// Независимые чтения выполняются параллельно, изменения - под блокировкой записи.
+// Ошибки не печатаются, а передаются в future: IOException для ввода-вывода,
+// IllegalArgumentException для неверных данных. Пока фасад используется, обращаться к базе
+// в обход него нельзя: согласованность обеспечивают только его блокировки. Игры в результатах -
+// копии: изменения базы, выполняемые в других потоках, их не затрагивают.
+public class AsyncGameDatabase implements AutoCloseable {
+    private static final int CHUNK_BYTES = 64 * 1024; // Размер блока при чтении и записи файлов
+
+    private final GameDatabase database;
+    private final Path path; // Файл базы данных
+    private final Executor executor;
+    private final boolean ownsExecutor; // Исполнитель создан фасадом и закрывается вместе с ним
+    private final ReadWriteLock lock = new ReentrantReadWriteLock(); // Данные в памяти
+    // Конец очереди операций с файлом базы: каждая следующая операция запускается по завершении предыдущей
+    private final AtomicReference<CompletableFuture<Void>> fileTail = new AtomicReference<>(CompletableFuture.completedFuture(null));
+
+    // Конструктор с исполнителем на виртуальных потоках
+    public AsyncGameDatabase(GameDatabase database) {
+        this(database, Executors.newVirtualThreadPerTaskExecutor(), true);
+    }
+
+    // Конструктор с заданным исполнителем (закрывать его должен вызывающий)
+    public AsyncGameDatabase(GameDatabase database, Executor executor) {
+        this(database, executor, false);
+    }
+
+    private AsyncGameDatabase(GameDatabase database, Executor executor, boolean ownsExecutor) {
+        this.database = database;
+        this.path = Path.of(database.getFilePath());
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    // Загрузка базы данных из файла (файл читается блоками по мере разбора)
+    public CompletableFuture<Void> load() {
+        return withFile(() -> supply(() -> write(() -> {
+            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+                 BufferedReader br = new BufferedReader(new InputStreamReader(new ChannelInputStream(channel), StandardCharsets.UTF_8))) {
+                database.load(br);
+                if (database.isDegraded()) {
+                    database.writeQuarantine();
+                }
+            }
+            return null;
+        })));
+    }
+
+    // Сохранение базы данных в файл (записи уходят в файл блоками по мере кодирования, под блокировкой
+    // чтения, поэтому файл - согласованный снимок базы, а копия всего файла в памяти не создается)
+    public CompletableFuture<Void> save() {
+        return withFile(() -> supply(() -> read(() -> {
+            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path,
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                 Writer writer = new OutputStreamWriter(new ChannelOutputStream(channel), StandardCharsets.UTF_8)) {
+                database.writeTo(writer);
+            }
+            return null;
+        })));
+    }
+
+    // Поиск по значению поля
+    public CompletableFuture<List<Game>> search(String fieldName, Object value) {
+        return supply(() -> read(() -> copies(database.searchGame(fieldName, value))));
+    }
+
+    // Добавление новой игры
+    public CompletableFuture<Void> add(Game game) {
+        return supply(() -> write(() -> {
+            database.addGame(game);
+            return null;
+        }));
+    }
+
+    // Редактирование записи
+    public CompletableFuture<Void> update(int id, String newTitle, Date newReleaseDate, Double newRating) {
+        return supply(() -> write(() -> {
+            database.updateGame(id, newTitle, newReleaseDate, newRating);
+            return null;
+        }));
+    }
+
+    // Удаление игры по ключевому полю
+    public CompletableFuture<Void> remove(int id) {
+        return supply(() -> write(() -> {
+            if (!database.containsGame(id)) {
+                throw new IllegalArgumentException("Игра с таким ID не найдена");
+            }
+            database.removeGame(id);
+            return null;
+        }));
+    }
+
+    // Создание backup-файла (файл базы данных копируется блоками)
+    public CompletableFuture<Void> backup(String backupFilePath) {
+        return withFile(() -> FileCopy.start(path, Path.of(backupFilePath)));
+    }
+
+    // Экспорт в файл Excel (.xlsx)
+    public CompletableFuture<Void> export(String xlsxFilePath) {
+        return supply(() -> read(() -> {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(xlsxFilePath))) {
+                database.writeExcel(out);
+            }
+            return null;
+        }));
+    }
+
+    // Произвольный запрос к базе под блокировкой чтения (агрегаты, страницы и т. п.).
+    // Запрос должен вернуть вычисленное значение, не связанное с данными базы: блокировка снимается
+    // до того, как результат попадет к вызывающему. Игры, списки игр и страницы заменяются копиями,
+    // ленивые потоки и итераторы отклоняются с IllegalArgumentException
+    public <T> CompletableFuture<T> query(Function<GameDatabase, T> query) {
+        return supply(() -> read(() -> detach(query.apply(database))));
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutor && executor instanceof ExecutorService service) {
+            service.close();
+        }
+    }
+
+    // Запуск задачи в исполнителе; исключение задачи передается в future как есть
+    private <T> CompletableFuture<T> supply(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(unwrap(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private <T> T read(Callable<T> task) throws Exception {
+        lock.readLock().lock();
+        try {
+            return task.call();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T write(Callable<T> task) {
+        lock.writeLock().lock();
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Операция с файлом базы: следующая начнется только после завершения предыдущей.
+    // Очередь - цепочка future, а не блокировка, поэтому ожидающая операция не занимает поток исполнителя
+    private <T> CompletableFuture<T> withFile(Supplier<CompletableFuture<T>> operation) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = fileTail.getAndSet(done);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        previous.thenCompose(_ -> operation.get()).whenComplete((value, error) -> {
+            done.complete(null); // Ошибка операции не останавливает очередь
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    // Отвязка результата запроса от данных базы (вызывается под блокировкой чтения)
+    @SuppressWarnings("unchecked")
+    private static <T> T detach(T result) {
+        if (result instanceof BaseStream<?, ?> || result instanceof Iterator<?>) {
+            throw new IllegalArgumentException("Запрос должен вернуть вычисленное значение, а не ленивый поток.");
+        }
+        if (result instanceof Game game) {
+            return (T) game.copy();
+        }
+        if (result instanceof GamePage page) {
+            return (T) new GamePage(copies(page.games()), page.nextCursor());
+        }
+        if (result instanceof List<?> list && list.stream().anyMatch(Game.class::isInstance)) {
+            return (T) list.stream().map(item -> item instanceof Game game ? game.copy() : item)
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+        return result;
+    }
+
+    private static List<Game> copies(List<Game> games) {
+        return games.stream().map(Game::copy).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // Снятие оберток CompletionException/UncheckedIOException, чтобы в future попадала исходная ошибка
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof UncheckedIOException unchecked) {
+            return unchecked.getCause();
+        }
+        return error;
+    }
+
+    // Ожидание завершения операции асинхронного канала (для потоков ввода-вывода, работающих в исполнителе)
+    private static int await(Future<Integer> operation) throws IOException {
+        try {
+            return operation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Операция с файлом прервана");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    // Поток чтения файла блоками по CHUNK_BYTES через асинхронный канал
+    private static final class ChannelInputStream extends InputStream {
+        private final AsynchronousFileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES).limit(0);
+        private long position; // Позиция следующего чтения в файле
+
+        private ChannelInputStream(AsynchronousFileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        // Чтение следующего блока, если текущий прочитан; false - конец файла
+        private boolean fill() throws IOException {
+            while (!buffer.hasRemaining()) {
+                buffer.clear();
+                int read = await(channel.read(buffer, position));
+                buffer.flip();
+                if (read < 0) {
+                    return false;
+                }
+                position += read;
+            }
+            return true;
+        }
+    }
+
+    // Поток записи файла блоками по CHUNK_BYTES через асинхронный канал (канал закрывает вызывающий)
+    private static final class ChannelOutputStream extends OutputStream {
+        private final AsynchronousFileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES);
+        private long position; // Позиция следующей записи в файле
+
+        private ChannelOutputStream(AsynchronousFileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int count = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, count);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += await(channel.write(buffer, position));
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    // Копирование файла блоками по CHUNK_BYTES: блок читается, записывается, затем читается следующий.
+    // Каждый шаг запускается из обработчика завершения предыдущего, поток исполнителя не ждет
+    private static final class FileCopy {
+        private final AsynchronousFileChannel in;
+        private final AsynchronousFileChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES);
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private long position; // Позиция текущего блока в обоих файлах
+
+        private FileCopy(AsynchronousFileChannel in, AsynchronousFileChannel out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        static CompletableFuture<Void> start(Path source, Path target) {
+            AsynchronousFileChannel in;
+            try {
+                in = AsynchronousFileChannel.open(source, StandardOpenOption.READ);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            try {
+                AsynchronousFileChannel out = AsynchronousFileChannel.open(target,
+                        StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                FileCopy copy = new FileCopy(in, out);
+                copy.readNext();
+                return copy.future;
+            } catch (IOException e) {
+                closeQuietly(in);
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        private void readNext() {
+            buffer.clear();
+            in.read(buffer, position, null, handler(read -> {
+                if (read < 0) {
+                    finish();
+                } else {
+                    buffer.flip();
+                    writeRemaining();
+                }
+            }));
+        }
+
+        private void writeRemaining() {
+            out.write(buffer, position, null, handler(written -> {
+                position += written;
+                if (buffer.hasRemaining()) {
+                    writeRemaining();
+                } else {
+                    readNext();
+                }
+            }));
+        }
+
+        private CompletionHandler<Integer, Void> handler(IntConsumer onCompleted) {
+            return new CompletionHandler<>() {
+                @Override
+                public void completed(Integer result, Void attachment) {
+                    try {
+                        onCompleted.accept(result);
+                    } catch (RuntimeException e) {
+                        fail(e);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable error, Void attachment) {
+                    fail(error);
+                }
+            };
+        }
+
+        private void finish() {
+            closeQuietly(in);
+            try {
+                out.close();
+                future.complete(null);
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        private void fail(Throwable error) {
+            closeQuietly(in);
+            closeQuietly(out);
+            future.completeExceptionally(error);
+        }
+    }
+
+    private static void closeQuietly(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
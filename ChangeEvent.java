@@ -0,0 +1,17 @@
+package org.example;
+
+// Событие изменения базы данных: номер в журнале, тип и образы записи до и после изменения
+public record ChangeEvent(long sequence, Type type, Game before, Game after, long timestamp) {
+    // Тип изменения
+    public enum Type {
+        INSERT, // before == null, after - добавленная игра
+        UPDATE, // before и after - игра до и после редактирования
+        DELETE, // before - удаленная игра, after == null
+        CLEAR   // база данных очищена, before и after == null
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + type + " " + before + " -> " + after;
+    }
+}
@@ -0,0 +1,200 @@
+package org.example;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Лента изменений: кольцевой буфер без блокировок с последовательной нумерацией событий.
+// Каждый подписчик читает ленту в своем потоке со своей позиции; если самый медленный подписчик
+// отстал на целый буфер, публикация ждет его (обратное давление).
+public class ChangeFeed {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final AtomicReferenceArray<ChangeEvent> ring; // Кольцевой буфер событий
+    private final int mask; // Маска индекса (емкость - степень двойки)
+    private final AtomicLong nextSequence = new AtomicLong(1); // Номер следующего публикуемого события
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet(); // Активные подписчики
+    private final Set<Thread> blockedProducers = ConcurrentHashMap.newKeySet(); // Публикующие потоки, ждущие подписчиков
+
+    // Конструктор
+    public ChangeFeed(int capacity) {
+        this.ring = new AtomicReferenceArray<>(checkCapacity(capacity));
+        this.mask = capacity - 1;
+    }
+
+    // Проверка емкости ленты
+    static int checkCapacity(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Емкость ленты должна быть степенью двойки.");
+        }
+        return capacity;
+    }
+
+    // Публикация события; возвращает его номер
+    public long publish(ChangeEvent.Type type, Game before, Game after) {
+        long sequence = nextSequence.getAndIncrement();
+        // Ячейку можно перезаписать, только когда все подписчики прочитали событие sequence - capacity
+        if (sequence - ring.length() >= minPosition()) {
+            Thread producer = Thread.currentThread();
+            blockedProducers.add(producer);
+            try {
+                // Условие перепроверяется после регистрации: подписчик, сдвинувшийся раньше, нас уже не разбудит
+                while (sequence - ring.length() >= minPosition()) {
+                    LockSupport.park(this);
+                }
+            } finally {
+                blockedProducers.remove(producer);
+            }
+        }
+        ring.set(index(sequence), new ChangeEvent(sequence, type, before, after, System.currentTimeMillis()));
+        // Будим подписчиков, уснувших в ожидании нового события
+        for (Subscription subscription : subscriptions) {
+            if (subscription.waiting) {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+        return sequence;
+    }
+
+    // Пробуждение публикующих потоков после того, как подписчик сдвинулся или отписался
+    private void wakeProducers() {
+        if (!blockedProducers.isEmpty()) {
+            for (Thread producer : blockedProducers) {
+                LockSupport.unpark(producer);
+            }
+        }
+    }
+
+    // Есть ли активные подписчики (без них изменения базы в ленту не публикуются)
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    // Номер последнего опубликованного события (0 - событий еще не было)
+    public long lastSequence() {
+        return nextSequence.get() - 1;
+    }
+
+    // Подписка на новые события
+    public Subscription subscribe(Consumer<ChangeEvent> consumer) {
+        return subscribe(nextSequence.get(), consumer);
+    }
+
+    // Подписка с заданного номера (возобновление чтения ленты)
+    public Subscription subscribe(long fromSequence, Consumer<ChangeEvent> consumer) {
+        return subscribe(fromSequence, consumer, null);
+    }
+
+    // Подписка, не сдерживающая публикацию: если подписчик отстанет на весь буфер, подписка закрывается
+    // и вызывается onOverrun (например, чтобы медленная реплика догнала ведущего по снимку)
+    public Subscription subscribe(long fromSequence, Consumer<ChangeEvent> consumer, Runnable onOverrun) {
+        if (fromSequence < 1) {
+            throw new IllegalArgumentException("Номер события должен быть положительным.");
+        }
+        Subscription subscription = new Subscription(fromSequence, consumer, onOverrun);
+        subscriptions.add(subscription);
+        // Проверяем после регистрации: с этого момента нужные события уже не будут перезаписаны
+        if (fromSequence < nextSequence.get()) {
+            ChangeEvent event = ring.get(index(fromSequence));
+            if (event == null || event.sequence() != fromSequence) {
+                subscriptions.remove(subscription);
+                throw new IllegalArgumentException("Событие " + fromSequence + " уже вытеснено из ленты.");
+            }
+        }
+        subscription.start();
+        return subscription;
+    }
+
+    // Минимальная позиция среди подписчиков
+    private long minPosition() {
+        long min = Long.MAX_VALUE;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.onOverrun == null) {
+                min = Math.min(min, subscription.position.get());
+            }
+        }
+        return min;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+
+    // Подписчик, читающий ленту в отдельном виртуальном потоке
+    public final class Subscription implements AutoCloseable {
+        private final AtomicLong position; // Номер следующего события для чтения
+        private final Consumer<ChangeEvent> consumer;
+        private final Runnable onOverrun; // null - подписчик сдерживает публикацию
+        private volatile boolean closed;
+        private volatile boolean waiting; // Подписчик спит до публикации следующего события
+        private volatile Thread thread;
+
+        private Subscription(long fromSequence, Consumer<ChangeEvent> consumer, Runnable onOverrun) {
+            this.position = new AtomicLong(fromSequence);
+            this.consumer = consumer;
+            this.onOverrun = onOverrun;
+        }
+
+        private void start() {
+            // Поток присваивается до запуска, чтобы публикация могла его разбудить с первого же ожидания
+            thread = Thread.ofVirtual().name("change-feed-" + position.get()).unstarted(this::run);
+            thread.start();
+        }
+
+        // Номер следующего события, которое получит подписчик
+        public long position() {
+            return position.get();
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        // Отмена подписки
+        @Override
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+            wakeProducers();
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void run() {
+            while (!closed) {
+                long sequence = position.get();
+                ChangeEvent event = ring.get(index(sequence));
+                if (event != null && event.sequence() == sequence) {
+                    try {
+                        consumer.accept(event);
+                    } catch (RuntimeException e) {
+                        System.err.println("Ошибка обработки события " + sequence + ": " + e.getMessage());
+                        close();
+                        return;
+                    }
+                    position.set(sequence + 1);
+                    wakeProducers();
+                } else if (event != null && event.sequence() > sequence) {
+                    close();
+                    if (onOverrun != null) {
+                        onOverrun.run();
+                    } else {
+                        System.err.println("Подписчик отстал: событие " + sequence + " вытеснено из ленты");
+                    }
+                } else {
+                    // Объявляем ожидание и перепроверяем ячейку: событие, опубликованное в промежутке, не потеряется
+                    waiting = true;
+                    ChangeEvent next = ring.get(index(sequence));
+                    if (!closed && (next == null || next.sequence() < sequence)) {
+                        LockSupport.park(this);
+                    }
+                    waiting = false;
+                }
+            }
+        }
+    }
+}
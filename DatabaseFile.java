@@ -0,0 +1,284 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+// Формат файла базы данных с контрольными суммами.
+// Запись: "<игра>\t<CRC32C записи>", после каждых BLOCK_SIZE записей (и в конце файла) -
+// строка блока "#block <число записей> <CRC32C всех строк блока>".
+// Файлы старого формата (без контрольных сумм) читаются как раньше, без проверки.
+final class DatabaseFile {
+    static final int BLOCK_SIZE = 256; // Записей в блоке
+    private static final String FOOTER_PREFIX = "#block ";
+    private static final char CHECKSUM_SEPARATOR = '\t';
+    private static final int CHECKSUM_LENGTH = 8;
+
+    private DatabaseFile() {
+    }
+
+    // Строка записи с контрольной суммой
+    static String encode(Game game) {
+        String record = game.toString();
+        return record + CHECKSUM_SEPARATOR + hex(checksum(record));
+    }
+
+    // Строка конца блока
+    static String footer(int count, CRC32C blockChecksum) {
+        return FOOTER_PREFIX + count + " " + hex(blockChecksum.getValue());
+    }
+
+    static boolean isFooter(String line) {
+        return line.startsWith(FOOTER_PREFIX);
+    }
+
+    // Добавление строки к контрольной сумме блока
+    static void update(CRC32C blockChecksum, String line) {
+        blockChecksum.update(line.getBytes(StandardCharsets.UTF_8));
+        blockChecksum.update('\n');
+    }
+
+    // Совпадает ли строка конца блока с фактическими числом записей и контрольной суммой
+    static boolean footerMatches(String footer, int count, CRC32C blockChecksum) {
+        return footer.equals(footer(count, blockChecksum));
+    }
+
+    // Разбор записи с проверкой ее контрольной суммы
+    static Game decode(String line, boolean checksumRequired) {
+        int separator = line.length() - CHECKSUM_LENGTH - 1;
+        if (separator >= 0 && line.charAt(separator) == CHECKSUM_SEPARATOR) {
+            String record = line.substring(0, separator);
+            if (!line.endsWith(hex(checksum(record)))) {
+                throw new IllegalArgumentException("Неверная контрольная сумма записи");
+            }
+            return Game.fromString(record);
+        }
+        if (checksumRequired) {
+            throw new IllegalArgumentException("Нет контрольной суммы записи");
+        }
+        return Game.fromString(line);
+    }
+
+    // Разбор записи из блока, контрольная сумма которого уже сошлась
+    static Game decodeTrusted(String line) {
+        int separator = line.length() - CHECKSUM_LENGTH - 1;
+        return Game.fromString(separator >= 0 && line.charAt(separator) == CHECKSUM_SEPARATOR ? line.substring(0, separator) : line);
+    }
+
+    // ID из начала записи, если его удается прочитать
+    static Integer leadingId(String line) {
+        int end = line.indexOf(',');
+        try {
+            return Integer.parseInt(end >= 0 ? line.substring(0, end) : line);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Проверка файла без разбора полей. Файл отображается в память участками, поэтому не читается
+    // в кучу целиком и может быть больше 2 ГБ. Сначала участки параллельно просматриваются в поисках строк
+    // блоков, затем параллельно проверяются контрольные суммы блоков; записи по отдельности проверяются
+    // только в поврежденных блоках
+    static VerificationReport verify(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedFile file = new MappedFile(channel);
+
+            // Строки блоков с абсолютными номерами строк: {начало строки, номер строки с 0}
+            List<ChunkScan> scans = IntStream.range(0, file.chunkCount()).parallel().mapToObj(file::scan).toList();
+            List<long[]> footers = new ArrayList<>();
+            long lineBase = 0;
+            for (ChunkScan scan : scans) {
+                for (long[] footer : scan.footers()) {
+                    footers.add(new long[]{footer[0], lineBase + footer[1]});
+                }
+                lineBase += scan.lines();
+            }
+            boolean checksummed = !footers.isEmpty();
+
+            // Блоки: {начало данных, начало строки блока (-1, если ее нет), номер первой строки с 0}
+            List<long[]> blocks = new ArrayList<>();
+            long start = 0;
+            long firstLine = 0;
+            for (long[] footer : footers) {
+                blocks.add(new long[]{start, footer[0], firstLine});
+                start = file.lineEnd(footer[0]) + 1;
+                firstLine = footer[1] + 1;
+            }
+            if (start < file.size()) {
+                blocks.add(new long[]{start, -1, firstLine});
+            }
+
+            List<Integer> corruptLines = new ArrayList<>();
+            int damagedBlocks = 0;
+            List<List<Integer>> results = checksummed
+                    ? blocks.parallelStream().map(file::verifyBlock).toList()
+                    : List.of();
+            for (List<Integer> blockResult : results) {
+                if (blockResult != null) {
+                    damagedBlocks++;
+                    corruptLines.addAll(blockResult);
+                }
+            }
+            int records = (int) (lineBase - footers.size());
+            return new VerificationReport(records, footers.size(), damagedBlocks, corruptLines, checksummed ? 0 : records);
+        }
+    }
+
+    // Результат просмотра участка: число начал строк и строки блоков {начало, номер строки в участке}
+    private record ChunkScan(long lines, List<long[]> footers) {
+    }
+
+    // Файл, отображенный в память участками по CHUNK_SIZE байт
+    private static final class MappedFile {
+        private static final int CHUNK_SIZE = 16 << 20;
+        private static final byte[] FOOTER_BYTES = FOOTER_PREFIX.getBytes(StandardCharsets.US_ASCII);
+
+        private final long size;
+        private final MappedByteBuffer[] chunks;
+
+        private MappedFile(FileChannel channel) throws IOException {
+            size = channel.size();
+            chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+            for (int i = 0; i < chunks.length; i++) {
+                long offset = (long) i * CHUNK_SIZE;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHUNK_SIZE, size - offset));
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        int chunkCount() {
+            return chunks.length;
+        }
+
+        byte get(long position) {
+            return chunks[(int) (position / CHUNK_SIZE)].get((int) (position % CHUNK_SIZE));
+        }
+
+        // Позиция '\n', завершающего строку (или конец файла)
+        long lineEnd(long position) {
+            while (position < size && get(position) != '\n') {
+                position++;
+            }
+            return position;
+        }
+
+        // Поиск начал строк и строк блоков в участке
+        ChunkScan scan(int chunk) {
+            MappedByteBuffer buffer = chunks[chunk];
+            long from = (long) chunk * CHUNK_SIZE;
+            int length = buffer.limit();
+            byte previous = from == 0 ? (byte) '\n' : get(from - 1);
+            long lines = 0;
+            List<long[]> footers = new ArrayList<>();
+            for (int i = 0; i < length; i++) {
+                if (previous == '\n') {
+                    if (startsWithFooter(from + i)) {
+                        footers.add(new long[]{from + i, lines});
+                    }
+                    lines++;
+                }
+                previous = buffer.get(i);
+            }
+            return new ChunkScan(lines, footers);
+        }
+
+        // null - блок цел, иначе номера (с 1) поврежденных строк блока
+        List<Integer> verifyBlock(long[] block) {
+            long end = block[1] >= 0 ? block[1] : size;
+            if (block[1] >= 0) {
+                CRC32C crc = new CRC32C();
+                int count = 0;
+                for (long lineStart = block[0]; lineStart < end; ) {
+                    long lineEnd = lineEnd(lineStart);
+                    update(crc, lineStart, contentEnd(lineStart, lineEnd));
+                    crc.update('\n');
+                    count++;
+                    lineStart = lineEnd + 1;
+                }
+                if (footerMatches(text(block[1], contentEnd(block[1], lineEnd(block[1]))), count, crc)) {
+                    return null;
+                }
+            }
+            // Блок поврежден или не завершен - проверяем записи по отдельности
+            List<Integer> corrupt = new ArrayList<>();
+            long lineNumber = block[2];
+            for (long lineStart = block[0]; lineStart < end; lineNumber++) {
+                long lineEnd = lineEnd(lineStart);
+                if (!recordMatches(lineStart, contentEnd(lineStart, lineEnd))) {
+                    corrupt.add((int) (lineNumber + 1));
+                }
+                lineStart = lineEnd + 1;
+            }
+            if (block[1] >= 0 && corrupt.isEmpty()) {
+                corrupt.add((int) (lineNumber + 1)); // Записи целы, повреждена сама строка блока или строки потеряны
+            }
+            return corrupt;
+        }
+
+        // Конец содержимого строки без '\r'
+        private long contentEnd(long lineStart, long lineEnd) {
+            return lineEnd > lineStart && get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+        }
+
+        private boolean recordMatches(long start, long end) {
+            long separator = end - CHECKSUM_LENGTH - 1;
+            if (separator < start || get(separator) != CHECKSUM_SEPARATOR) {
+                return false;
+            }
+            CRC32C crc = new CRC32C();
+            update(crc, start, separator);
+            return text(separator + 1, end).equals(hex(crc.getValue()));
+        }
+
+        private boolean startsWithFooter(long position) {
+            if (size - position < FOOTER_BYTES.length) {
+                return false;
+            }
+            for (int i = 0; i < FOOTER_BYTES.length; i++) {
+                if (get(position + i) != FOOTER_BYTES[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Добавление диапазона байтов к контрольной сумме (диапазон может пересекать границу участков)
+        private void update(CRC32C crc, long from, long to) {
+            while (from < to) {
+                int chunk = (int) (from / CHUNK_SIZE);
+                int offset = (int) (from % CHUNK_SIZE);
+                int length = (int) Math.min(to - from, chunks[chunk].limit() - offset);
+                crc.update(chunks[chunk].slice(offset, length));
+                from += length;
+            }
+        }
+
+        private String text(long from, long to) {
+            byte[] bytes = new byte[(int) (to - from)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = get(from + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static long checksum(String record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static String hex(long checksum) {
+        return String.format("%08x", checksum);
+    }
+}
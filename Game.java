@@ -48,6 +48,11 @@ public class Game {
         this.rating = rating;
     }
 
+    // Создаем независимую копию игры
+    public Game copy() {
+        return new Game(id, title, releaseDate != null ? (Date) releaseDate.clone() : null, rating);
+    }
+
     // Создаем игру из строки
     public static Game fromString(String line) {
         String[] parts = line.split(", ");
@@ -60,7 +65,7 @@ public class Game {
             try {
                 releaseDate = dateFormat.parse(parts[2]);
             } catch (ParseException e) {
-                System.err.println("Ошибка парсинга даты: " + e.getMessage());
+                throw new IllegalArgumentException("Ошибка парсинга даты: " + e.getMessage());
             }
         }
 
@@ -1,40 +1,209 @@
 package org.example;
 
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
 import java.text.SimpleDateFormat;
 
 public class GameDatabase {
-    private final Map<Integer, Game> gameMap = new HashMap<>(); // Хеш-таблица для быстрого доступа по id
-    private final Map<String, Set<Game>> titleMap = new HashMap<>(); // Хеш-таблица на множестве для быстрого доступа по названию
+    private final NavigableMap<Integer, Game> gameMap = new TreeMap<>(); // Дерево по id: быстрый доступ по id и постраничный обход по порядку
+    private final TitleDictionary titles = new TitleDictionary(); // Словарь названий: каждое название хранится один раз
+    private final List<Set<Game>> titleIndex = new ArrayList<>(); // Индекс по id группы названий без учета регистра
     private final Map<Double, Set<Game>> ratingMap = new HashMap<>(); // Хеш-таблица на множестве для быстрого доступа по оценке
     private final Map<Date, Set<Game>> releaseDateMap = new HashMap<>(); // Хеш-таблица на множестве для быстрого доступа по дате
     private final String filePath; // Путь к файлу базы данных
+    private final List<QuarantinedRecord> quarantine = new ArrayList<>(); // Поврежденные записи, пропущенные при загрузке
+    private final int changeFeedCapacity; // Емкость ленты изменений
+    private ChangeFeed changeFeed; // Лента изменений базы данных (создается при первом обращении)
+    private static final String QUARANTINE_LINE_PREFIX = "# строка "; // Комментарий перед записью в файле карантина
+    private static final int PARALLEL_THRESHOLD = 10_000; // Порог числа ключей индекса для параллельной свертки
 
     // Конструктор
     public GameDatabase(String filePath) {
+        this(filePath, ChangeFeed.DEFAULT_CAPACITY);
+    }
+
+    // Конструктор с заданной емкостью ленты изменений (степень двойки)
+    public GameDatabase(String filePath, int changeFeedCapacity) {
         this.filePath = filePath;
+        this.changeFeedCapacity = ChangeFeed.checkCapacity(changeFeedCapacity);
         load();
     }
 
-    // Открытие базы данных
+    // Открытие базы данных (поврежденные записи пропускаются и попадают в карантин)
     public void load() {
+        try (BufferedReader br = new BufferedReader(new FileReader(filePath, StandardCharsets.UTF_8))) {
+            load(br);
+        } catch (IOException e) {
+            reset();
+            System.out.println("Создана новая база данных, так как файл не обнаружен");
+        }
+        if (!quarantine.isEmpty()) {
+            System.err.println("База данных открыта в режиме восстановления, поврежденных записей: " + quarantine.size());
+            try {
+                writeQuarantine();
+            } catch (IOException e) {
+                System.err.println("Ошибка сохранения поврежденных записей: " + e.getMessage());
+            }
+        }
+    }
+
+    // Загрузка базы данных из потока в формате файла базы данных
+    void load(BufferedReader br) throws IOException {
+        reset();
+        List<String> block = new ArrayList<>(DatabaseFile.BLOCK_SIZE);
+        CRC32C blockChecksum = new CRC32C();
+        boolean checksummed = false;
+        int lineNumber = 0;
+        String line;
+        // Добавляем игры из файла поблочно
+        while ((line = br.readLine()) != null) {
+            lineNumber++;
+            if (DatabaseFile.isFooter(line)) {
+                checksummed = true;
+                boolean intact = DatabaseFile.footerMatches(line, block.size(), blockChecksum);
+                addBlock(block, lineNumber - block.size(), intact, true);
+                block.clear();
+                blockChecksum.reset();
+            } else {
+                block.add(line);
+                DatabaseFile.update(blockChecksum, line);
+            }
+        }
+        // Записи после последней строки блока (файл старого формата или обрезанный файл)
+        addBlock(block, lineNumber - block.size() + 1, false, checksummed);
+    }
+
+    // Сброс всех данных перед загрузкой
+    private void reset() {
         gameMap.clear();
-        titleMap.clear();
+        titleIndex.clear();
+        titles.clear();
         ratingMap.clear();
         releaseDateMap.clear();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+        quarantine.clear();
+        if (publishing()) {
+            changeFeed.publish(ChangeEvent.Type.CLEAR, null, null);
+        }
+    }
+
+    // Добавление записей блока; если контрольная сумма блока не сошлась, записи проверяются по отдельности
+    private void addBlock(List<String> lines, int firstLineNumber, boolean intact, boolean checksumRequired) {
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            try {
+                addGame(intact ? DatabaseFile.decodeTrusted(line) : DatabaseFile.decode(line, checksumRequired));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                quarantine.add(new QuarantinedRecord(firstLineNumber + i, line, e.getMessage()));
+            }
+        }
+    }
+
+    // Открыта ли база с поврежденными записями
+    public boolean isDegraded() {
+        return !quarantine.isEmpty();
+    }
+
+    // Записи, пропущенные при последней загрузке
+    public List<QuarantinedRecord> getQuarantine() {
+        return List.copyOf(quarantine);
+    }
+
+    // Файл, в котором сохраняются поврежденные записи (рядом с файлом базы данных)
+    public String getQuarantineFilePath() {
+        return filePath + ".quarantine";
+    }
+
+    // Дописывание записей карантина в файл карантина, чтобы их не потеряло следующее сохранение базы.
+    // Каждой записи предшествует строка-комментарий с номером строки и причиной. Записи, которые уже
+    // есть в файле карантина (та же строка с тем же содержимым), повторно не дописываются
+    void writeQuarantine() throws IOException {
+        Set<String> recorded = recordedQuarantine();
+        List<QuarantinedRecord> fresh = quarantine.stream()
+                .filter(record -> !recorded.contains(record.lineNumber() + "\n" + record.line()))
+                .toList();
+        if (fresh.isEmpty()) {
+            return;
+        }
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(getQuarantineFilePath(), StandardCharsets.UTF_8, true))) {
+            bw.write("# " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + " " + filePath
+                    + ", поврежденных записей: " + fresh.size());
+            bw.newLine();
+            for (QuarantinedRecord record : fresh) {
+                bw.write(QUARANTINE_LINE_PREFIX + record.lineNumber() + ": " + record.reason());
+                bw.newLine();
+                bw.write(record.line());
+                bw.newLine();
+            }
+        }
+    }
+
+    // Записи, уже сохраненные в файле карантина: "номер строки\nстрока"
+    private Set<String> recordedQuarantine() throws IOException {
+        Set<String> recorded = new HashSet<>();
+        File file = new File(getQuarantineFilePath());
+        if (!file.exists()) {
+            return recorded;
+        }
+        try (BufferedReader br = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String lineNumber = null; // Номер строки из последнего комментария записи
             String line;
-            // Добавляем игры из файла
             while ((line = br.readLine()) != null) {
-                Game game = Game.fromString(line);
-                addGame(game);
+                if (lineNumber != null) {
+                    recorded.add(lineNumber + "\n" + line);
+                    lineNumber = null;
+                } else if (line.startsWith(QUARANTINE_LINE_PREFIX) && line.indexOf(':') > 0) {
+                    lineNumber = line.substring(QUARANTINE_LINE_PREFIX.length(), line.indexOf(':'));
+                }
+            }
+        }
+        return recorded;
+    }
+
+    // Проверка контрольных сумм файла базы данных без загрузки
+    public VerificationReport verify() throws IOException {
+        return DatabaseFile.verify(Path.of(filePath));
+    }
+
+    // Восстановление записей из карантина по резервной копии; возвращает число восстановленных записей
+    public int repairFromBackup(String backupFilePath) {
+        Map<Integer, Game> backup = new HashMap<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(backupFilePath, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (DatabaseFile.isFooter(line)) {
+                    continue;
+                }
+                try {
+                    Game game = DatabaseFile.decode(line, false);
+                    backup.put(game.getId(), game);
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    // Поврежденные записи резервной копии не используем
+                }
             }
         } catch (IOException e) {
-            System.out.println("Создана новая база данных, так как файл не обнаружен");
+            System.err.println("Ошибка чтения резервной копии: " + e.getMessage());
+            return 0;
         }
+
+        int repaired = 0;
+        for (Iterator<QuarantinedRecord> it = quarantine.iterator(); it.hasNext(); ) {
+            Integer id = DatabaseFile.leadingId(it.next().line());
+            if (id != null && !gameMap.containsKey(id) && backup.containsKey(id)) {
+                addGame(backup.get(id));
+                it.remove();
+                repaired++;
+            }
+        }
+        System.out.println("Восстановлено записей из резервной копии: " + repaired + ", осталось в карантине: " + quarantine.size());
+        return repaired;
     }
 
     // Удаление базы данных
@@ -51,22 +220,62 @@ public class GameDatabase {
     // Очистка базы данных
     public void clearDatabase() {
         gameMap.clear();
-        titleMap.clear();
+        titleIndex.clear();
+        titles.clear();
         ratingMap.clear();
+        releaseDateMap.clear();
+        if (publishing()) {
+            changeFeed.publish(ChangeEvent.Type.CLEAR, null, null);
+        }
     }
 
     // Сохранение базы данных
     public void save() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(filePath))) {
-            for (Game game : gameMap.values()) {
-                bw.write(game.toString());
-                bw.newLine();
-            }
+        if (isDegraded()) {
+            System.err.println("Поврежденные записи (" + quarantine.size() + ") не попадут в файл базы данных, они сохранены в "
+                    + getQuarantineFilePath());
+        }
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(filePath, StandardCharsets.UTF_8))) {
+            writeTo(bw);
         } catch (IOException e) {
             System.out.println("Ошибка сохранения: " + e.getMessage());
         }
     }
 
+    // Запись базы данных в поток в формате файла базы данных
+    void writeTo(Writer writer) throws IOException {
+        BufferedWriter bw = writer instanceof BufferedWriter buffered ? buffered : new BufferedWriter(writer);
+        CRC32C blockChecksum = new CRC32C();
+        int count = 0;
+        for (Game game : gameMap.values()) {
+            String line = DatabaseFile.encode(game);
+            bw.write(line);
+            bw.newLine();
+            DatabaseFile.update(blockChecksum, line);
+            if (++count == DatabaseFile.BLOCK_SIZE) {
+                bw.write(DatabaseFile.footer(count, blockChecksum));
+                bw.newLine();
+                blockChecksum.reset();
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            bw.write(DatabaseFile.footer(count, blockChecksum));
+            bw.newLine();
+        }
+        bw.flush();
+    }
+
+    // Путь к файлу базы данных
+    public String getFilePath() {
+        return filePath;
+    }
+
+    // Есть ли игра с таким ID
+    public boolean containsGame(int id) {
+        return gameMap.containsKey(id);
+    }
+
     // Добавление новой игры
     public void addGame(Game game) {
         if (gameMap.containsKey(game.getId())) {
@@ -75,7 +284,9 @@ public class GameDatabase {
         gameMap.put(game.getId(), game);
 
         if (game.getTitle() != null) {
-            titleMap.computeIfAbsent(game.getTitle().toLowerCase(), _ -> new HashSet<>()).add(game);
+            int titleId = titles.intern(game.getTitle());
+            game.setTitle(titles.title(titleId)); // Все игры ссылаются на один экземпляр названия
+            titleSet(titles.foldId(titleId)).add(game);
         }
 
         if (game.getRating() != null) {
@@ -85,6 +296,33 @@ public class GameDatabase {
         if (game.getReleaseDate() != null) {
             releaseDateMap.computeIfAbsent(game.getReleaseDate(), _ -> new HashSet<>()).add(game);
         }
+        if (publishing()) {
+            changeFeed.publish(ChangeEvent.Type.INSERT, null, game.copy());
+        }
+    }
+
+    // Множество игр группы названий (создается при первом обращении)
+    private Set<Game> titleSet(int foldId) {
+        while (titleIndex.size() <= foldId) {
+            titleIndex.add(null);
+        }
+        Set<Game> games = titleIndex.get(foldId);
+        if (games == null) {
+            games = new HashSet<>();
+            titleIndex.set(foldId, games);
+        }
+        return games;
+    }
+
+    // Удаление игры из индекса названий; опустевшее множество и неиспользуемое название освобождаются
+    private void unindexTitle(Game game, String title) {
+        int foldId = titles.findFoldId(title);
+        Set<Game> games = titleIndex.get(foldId);
+        games.remove(game);
+        if (games.isEmpty()) {
+            titleIndex.set(foldId, null);
+        }
+        titles.release(title);
     }
 
     // Удаление игры по ключевому полю
@@ -93,7 +331,7 @@ public class GameDatabase {
         if (game != null) {
             String title = game.getTitle();
             if (title != null) {
-                titleMap.get(title.toLowerCase()).remove(game);
+                unindexTitle(game, title);
             }
 
             Double rating = game.getRating();
@@ -105,6 +343,9 @@ public class GameDatabase {
             if (releaseDate != null) {
                 releaseDateMap.get(releaseDate).remove(game);
             }
+            if (publishing()) {
+                changeFeed.publish(ChangeEvent.Type.DELETE, game.copy(), null);
+            }
         } else {
             System.out.println("Нет игры с ID " + id);
         }
@@ -130,56 +371,42 @@ public class GameDatabase {
 
     // Поиск по значению поля
     public List<Game> searchGame(String fieldName, Object value) {
-        List<Game> results = new ArrayList<>();
+        return searchGameStream(fieldName, value).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // Ленивый поиск по значению поля (поток нельзя потреблять параллельно с изменением базы)
+    public Stream<Game> searchGameStream(String fieldName, Object value) {
         // Поиск по id
         if (fieldName.equalsIgnoreCase("id")) {
             if (value instanceof Integer) {
-                Game game = gameMap.get(value);
-                if (game != null) {
-                    results.add(game);
-                }
+                return Stream.ofNullable(gameMap.get(value));
             }
         } else if (fieldName.equalsIgnoreCase("title")) { // Поиск по названию
             if (value == null) {
-                for (Game game : gameMap.values()) {
-                    if (game.getTitle() == null) {
-                        results.add(game);
-                    }
-                }
+                return streamGames().filter(game -> game.getTitle() == null);
             } else if (value instanceof String) {
-                Set<Game> games = titleMap.get(value.toString().toLowerCase());
-                if (games != null) {
-                    results.addAll(games);
-                }
+                int foldId = titles.findFoldId((String) value);
+                return foldId >= 0 ? indexStream(titleIndex.get(foldId)) : Stream.empty();
             }
         } else if (fieldName.equalsIgnoreCase("rating")) { // Поиск по оценке
             if (value == null) {
-                for (Game game : gameMap.values()) {
-                    if (game.getRating() == null) {
-                        results.add(game);
-                    }
-                }
+                return streamGames().filter(game -> game.getRating() == null);
             } else if (value instanceof Double) {
-                Set<Game> games = ratingMap.get(value);
-                if (games != null) {
-                    results.addAll(games);
-                }
+                return indexStream(ratingMap.get(value));
             }
         } else if (fieldName.equalsIgnoreCase("releaseDate")) { // Поиск по дате выхода
             if (value == null) {
-                for (Game game : gameMap.values()) {
-                    if (game.getReleaseDate() == null) {
-                        results.add(game);
-                    }
-                }
+                return streamGames().filter(game -> game.getReleaseDate() == null);
             } else if (value instanceof Date searchDate) {
-                Set<Game> games = releaseDateMap.get(searchDate);
-                if (games != null) {
-                    results.addAll(games);
-                }
+                return indexStream(releaseDateMap.get(searchDate));
             }
         }
-        return results;
+        return Stream.empty();
+    }
+
+    // Поток по множеству из индекса
+    private static Stream<Game> indexStream(Set<Game> games) {
+        return games != null ? games.stream() : Stream.empty();
     }
 
     // Редактирование записи
@@ -188,18 +415,17 @@ public class GameDatabase {
         if (existingGame == null) {
             throw new IllegalArgumentException("Игра с таким ID не найдена");
         }
+        Game before = publishing() ? existingGame.copy() : null; // Состояние до изменения нужно только для события
 
         // Обновляем название, если оно не пустое
         if (newTitle != null && !newTitle.trim().isEmpty()) {
             String oldTitle = existingGame.getTitle();
+            int titleId = titles.intern(newTitle); // До освобождения старого, чтобы не удалять то же название
             if (oldTitle != null) {
-                Set<Game> gamesWithOldTitle = titleMap.get(oldTitle.toLowerCase());
-                if (gamesWithOldTitle != null) {
-                    gamesWithOldTitle.remove(existingGame);
-                }
+                unindexTitle(existingGame, oldTitle);
             }
-            existingGame.setTitle(newTitle);
-            titleMap.computeIfAbsent(newTitle.toLowerCase(), _ -> new HashSet<>()).add(existingGame);
+            existingGame.setTitle(titles.title(titleId));
+            titleSet(titles.foldId(titleId)).add(existingGame);
         }
 
         // Обновляем дату
@@ -227,6 +453,29 @@ public class GameDatabase {
             existingGame.setRating(newRating);
             ratingMap.computeIfAbsent(newRating, _ -> new HashSet<>()).add(existingGame);
         }
+
+        // Событие публикуется, только если какое-то поле действительно изменилось
+        if (before != null) {
+            boolean changed = !Objects.equals(before.getTitle(), existingGame.getTitle())
+                    || !Objects.equals(before.getReleaseDate(), existingGame.getReleaseDate())
+                    || !Objects.equals(before.getRating(), existingGame.getRating());
+            if (changed) {
+                changeFeed.publish(ChangeEvent.Type.UPDATE, before, existingGame.copy());
+            }
+        }
+    }
+
+    // Нужно ли публиковать события: без подписчиков копии игр и события не создаются
+    private boolean publishing() {
+        return changeFeed != null && changeFeed.hasSubscribers();
+    }
+
+    // Лента изменений для подписчиков (кэши, реплики)
+    public ChangeFeed getChangeFeed() {
+        if (changeFeed == null) {
+            changeFeed = new ChangeFeed(changeFeedCapacity);
+        }
+        return changeFeed;
     }
 
     // Получение всех игр
@@ -234,6 +483,152 @@ public class GameDatabase {
         return List.copyOf(gameMap.values());
     }
 
+    // Ленивый поток всех игр в порядке id (без копирования; поддерживает parallel())
+    public Stream<Game> streamGames() {
+        return gameMap.values().stream();
+    }
+
+    // Страница игр в порядке id, начиная после курсора (null - с начала)
+    public GamePage getGamesPage(Integer cursor, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным.");
+        }
+        Map<Integer, Game> tail = cursor == null ? gameMap : gameMap.tailMap(cursor, false);
+        List<Game> games = new ArrayList<>(Math.min(limit, tail.size()));
+        Integer lastId = null;
+        for (Map.Entry<Integer, Game> entry : tail.entrySet()) {
+            if (games.size() == limit) {
+                return new GamePage(games, lastId);
+            }
+            games.add(entry.getValue());
+            lastId = entry.getKey();
+        }
+        return new GamePage(games, null);
+    }
+
+    // Количество игр с оценкой (по индексу оценок)
+    public long countRated() {
+        return entries(ratingMap).mapToLong(e -> e.getValue().size()).sum();
+    }
+
+    // Средняя оценка (по индексу оценок, без обхода самих игр)
+    public OptionalDouble averageRating() {
+        long count = countRated();
+        if (count == 0) {
+            return OptionalDouble.empty();
+        }
+        double sum = entries(ratingMap).mapToDouble(e -> e.getKey() * e.getValue().size()).sum();
+        return OptionalDouble.of(sum / count);
+    }
+
+    // Минимальная оценка
+    public OptionalDouble minRating() {
+        return entries(ratingMap).filter(e -> !e.getValue().isEmpty()).mapToDouble(Map.Entry::getKey).min();
+    }
+
+    // Максимальная оценка
+    public OptionalDouble maxRating() {
+        return entries(ratingMap).filter(e -> !e.getValue().isEmpty()).mapToDouble(Map.Entry::getKey).max();
+    }
+
+    // Количество игр для каждой оценки
+    public Map<Double, Long> countByRating() {
+        return entries(ratingMap)
+                .filter(e -> !e.getValue().isEmpty())
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> (long) e.getValue().size()));
+    }
+
+    // Гистограмма оценок: ключ - нижняя граница корзины шириной bucketWidth
+    public SortedMap<Double, Long> ratingHistogram(double bucketWidth) {
+        if (!(bucketWidth > 0)) {
+            throw new IllegalArgumentException("Ширина корзины должна быть положительной.");
+        }
+        // Номер корзины и ее границу считаем в десятичной арифметике: 0.3 / 0.1 дает ровно 3
+        // (а не 2.9999999999999996), 3 * 0.1 - ровно 0.3 (а не 0.30000000000000004)
+        BigDecimal width = BigDecimal.valueOf(bucketWidth);
+        Map<Long, Long> buckets = entries(ratingMap)
+                .filter(e -> !e.getValue().isEmpty())
+                .collect(Collectors.groupingByConcurrent(
+                        e -> bucketIndex(BigDecimal.valueOf(e.getKey()), width),
+                        Collectors.summingLong(e -> e.getValue().size())));
+        SortedMap<Double, Long> histogram = new TreeMap<>();
+        buckets.forEach((index, count) -> histogram.put(width.multiply(BigDecimal.valueOf(index)).doubleValue(), count));
+        return histogram;
+    }
+
+    // Номер корзины: частное, округленное вниз (для отрицательных значений - в сторону минус бесконечности)
+    private static long bucketIndex(BigDecimal value, BigDecimal width) {
+        BigDecimal[] quotientAndRemainder = value.divideAndRemainder(width);
+        long index = quotientAndRemainder[0].longValue();
+        return quotientAndRemainder[1].signum() < 0 ? index - 1 : index;
+    }
+
+    // Количество игр по году выпуска (по индексу дат)
+    public SortedMap<Integer, Long> countByReleaseYear() {
+        Map<Integer, Long> counts = entries(releaseDateMap)
+                .filter(e -> !e.getValue().isEmpty())
+                .collect(Collectors.groupingByConcurrent(
+                        e -> yearOf(e.getKey()),
+                        Collectors.summingLong(e -> e.getValue().size())));
+        return new TreeMap<>(counts);
+    }
+
+    // Средняя оценка по году выпуска (игры без оценки не учитываются)
+    public SortedMap<Integer, Double> averageRatingByReleaseYear() {
+        Map<Integer, DoubleSummaryStatistics> stats = entries(releaseDateMap)
+                .filter(e -> !e.getValue().isEmpty())
+                .collect(Collectors.groupingByConcurrent(
+                        e -> yearOf(e.getKey()),
+                        Collectors.flatMapping(e -> e.getValue().stream()
+                                        .map(Game::getRating)
+                                        .filter(Objects::nonNull),
+                                Collectors.summarizingDouble(Double::doubleValue))));
+        SortedMap<Integer, Double> result = new TreeMap<>();
+        stats.forEach((year, s) -> {
+            if (s.getCount() > 0) {
+                result.put(year, s.getAverage());
+            }
+        });
+        return result;
+    }
+
+    // Первые n игр с наибольшей оценкой
+    public List<Game> topByRating(int n) {
+        if (n <= 0) {
+            return List.of();
+        }
+        // Идем по оценкам в порядке убывания и останавливаемся, набрав n игр
+        List<Double> ratings = entries(ratingMap)
+                .filter(e -> !e.getValue().isEmpty())
+                .map(Map.Entry::getKey)
+                .sorted(Comparator.reverseOrder())
+                .toList();
+        List<Game> results = new ArrayList<>(n);
+        for (Double rating : ratings) {
+            Set<Game> games = ratingMap.get(rating);
+            for (Game game : games) {
+                if (results.size() == n) {
+                    return results;
+                }
+                results.add(game);
+            }
+        }
+        return results;
+    }
+
+    // Поток по записям индекса, параллельный для больших индексов
+    private static <K> Stream<Map.Entry<K, Set<Game>>> entries(Map<K, Set<Game>> index) {
+        Stream<Map.Entry<K, Set<Game>>> stream = index.entrySet().stream();
+        return index.size() >= PARALLEL_THRESHOLD ? stream.parallel() : stream;
+    }
+
+    // Год из даты выпуска
+    private static int yearOf(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        return calendar.get(Calendar.YEAR);
+    }
+
     // Создание backup-файла
     public void createBackup(String backupFilePath) {
         try (InputStream in = new FileInputStream(filePath);
@@ -267,38 +662,41 @@ public class GameDatabase {
 
     // Импорт в файл Excel (.xlsx)
     public void exportToExcel(String filePath) {
-        Workbook workbook = new XSSFWorkbook();
-        Sheet sheet = workbook.createSheet("Games");
-
-        // Создаем заголовки
-        Row headerRow = sheet.createRow(0);
-        headerRow.createCell(0).setCellValue("ID");
-        headerRow.createCell(1).setCellValue("Title");
-        headerRow.createCell(2).setCellValue("Release Date");
-        headerRow.createCell(3).setCellValue("Rating");
-
-        // Заполняем данными
-        int rowNum = 1;
-        for (Game game : gameMap.values()) {
-            Row row = sheet.createRow(rowNum++);
-            row.createCell(0).setCellValue(game.getId());
-            row.createCell(1).setCellValue(game.getTitle() != null ? game.getTitle() : "null");
-            row.createCell(2).setCellValue(game.getReleaseDate() != null ? new SimpleDateFormat("yyyy-MM-dd").format(game.getReleaseDate()) : "null");
-            row.createCell(3).setCellValue(game.getRating() != null ? game.getRating() : 0);
-        }
-
-        // Записываем в файл
         try (FileOutputStream fileOut = new FileOutputStream(filePath)) {
-            workbook.write(fileOut);
+            writeExcel(fileOut);
             System.out.println("Данные успешно экспортированы в " + filePath);
         } catch (IOException e) {
             System.err.println("Ошибка при экспорте данных: " + e.getMessage());
-        } finally {
-            try {
-                workbook.close();
-            } catch (IOException e) {
-                System.err.println("Ошибка при закрытии Workbook: " + e.getMessage());
+        }
+    }
+
+    // Запись таблицы Excel в поток
+    void writeExcel(OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(100); // Потоковая запись: в памяти держится только окно из 100 строк
+        try {
+            Sheet sheet = workbook.createSheet("Games");
+
+            // Создаем заголовки
+            Row headerRow = sheet.createRow(0);
+            headerRow.createCell(0).setCellValue("ID");
+            headerRow.createCell(1).setCellValue("Title");
+            headerRow.createCell(2).setCellValue("Release Date");
+            headerRow.createCell(3).setCellValue("Rating");
+
+            // Заполняем данными
+            int rowNum = 1;
+            for (Game game : gameMap.values()) {
+                Row row = sheet.createRow(rowNum++);
+                row.createCell(0).setCellValue(game.getId());
+                row.createCell(1).setCellValue(game.getTitle() != null ? game.getTitle() : "null");
+                row.createCell(2).setCellValue(game.getReleaseDate() != null ? new SimpleDateFormat("yyyy-MM-dd").format(game.getReleaseDate()) : "null");
+                row.createCell(3).setCellValue(game.getRating() != null ? game.getRating() : 0);
             }
+
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
         }
     }
 }
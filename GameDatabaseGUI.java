@@ -12,6 +12,8 @@ import java.util.List;
 
 // Класс, представляющий собой графический интерфейс для пользования файловой базой данных
 public class GameDatabaseGUI {
+    private static final int PAGE_SIZE = 1000; // Размер страницы при заполнении таблицы
+    private int loadGeneration; // Номер текущего заполнения таблицы
     private final GameDatabase gameDatabase;
     private JFrame frame;
     private DefaultTableModel tableModel;
@@ -77,6 +79,11 @@ public class GameDatabaseGUI {
         loadGames();
 
         frame.setVisible(true);
+
+        if (gameDatabase.isDegraded()) {
+            showError("База данных открыта в режиме восстановления. Поврежденных записей: "
+                    + gameDatabase.getQuarantine().size());
+        }
     }
 
     private JPanel getJPanel() {
@@ -159,9 +166,18 @@ public class GameDatabaseGUI {
     }
 
     private void loadGames() {
-        List<Game> games = gameDatabase.getGames();
         tableModel.setRowCount(0);
-        for (Game game : games) {
+        loadPage(++loadGeneration, null);
+    }
+
+    // Заполняем таблицу постранично: каждая следующая страница добавляется отдельным событием,
+    // поэтому интерфейс остается отзывчивым, пока большая база догружается
+    private void loadPage(int generation, Integer cursor) {
+        if (generation != loadGeneration) {
+            return; // Таблицу уже перезаполнили - прекращаем устаревшую загрузку
+        }
+        GamePage page = gameDatabase.getGamesPage(cursor, PAGE_SIZE);
+        for (Game game : page.games()) {
             String releaseDateStr = (game.getReleaseDate() != null) ?
                     new SimpleDateFormat("yyyy-MM-dd").format(game.getReleaseDate()) : "null";
             tableModel.addRow(new Object[]{
@@ -171,6 +187,9 @@ public class GameDatabaseGUI {
                     game.getRating() != null ? game.getRating() : "null"
             });
         }
+        if (page.hasNext()) {
+            SwingUtilities.invokeLater(() -> loadPage(generation, page.nextCursor()));
+        }
     }
 
     private void saveDatabase() {
@@ -354,6 +373,7 @@ public class GameDatabaseGUI {
         }
 
         if (results != null && !results.isEmpty()) {
+            loadGeneration++; // Прекращаем догрузку полного списка
             tableModel.setRowCount(0);
             for (Game game : results) {
                 String releaseDateStr = (game.getReleaseDate() != null) ?
@@ -0,0 +1,10 @@
+package org.example;
+
+import java.util.List;
+
+// Страница результатов: игры в порядке id и курсор для запроса следующей страницы (null - страниц больше нет)
+public record GamePage(List<Game> games, Integer nextCursor) {
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
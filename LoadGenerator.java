@@ -0,0 +1,357 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Генератор нагрузки для длительных смешанных прогонов базы данных.
+// Запуск: java org.example.LoadGenerator [--db файл (изменяется прогоном)] [--threads 8] [--duration 60] [--interval 10]
+//         [--keys 100000] [--mix read=85,write=13,save=1,backup=1,load=0] [--distribution uniform|zipf] [--zipf 0.99]
+// Раз в интервал печатает число операций, p50/p99/p999 и максимум задержки по каждому типу операций,
+// число и длительность пауз сборки мусора за интервал и объем живых данных в куче после последней сборки
+// (и его рост с первой сборки прогона: растущее значение при длительном прогоне указывает на утечку).
+public class LoadGenerator {
+    // Тип операции нагрузки
+    private enum Operation {
+        READ, WRITE, SAVE, BACKUP, LOAD
+    }
+
+    private final String dbPath;
+    private final int threads;
+    private final long durationMillis;
+    private final long intervalMillis;
+    private int keys; // Ключи - id от 0 до keys - 1
+    private final int[] mix = new int[Operation.values().length]; // Веса операций
+    private final double zipfExponent; // 0 - равномерное распределение ключей
+    private KeyDistribution distribution;
+
+    private final LatencyHistogram[] interval = new LatencyHistogram[Operation.values().length]; // За текущий интервал
+    private final LatencyHistogram[] total = new LatencyHistogram[Operation.values().length]; // За весь прогон
+    private final AtomicLong[] intervalErrors = new AtomicLong[Operation.values().length]; // За текущий интервал
+    private final AtomicLong[] totalErrors = new AtomicLong[Operation.values().length]; // За весь прогон
+
+    private LoadGenerator(Map<String, String> options) {
+        dbPath = options.getOrDefault("db", tempPath("loadgen", ".db"));
+        threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+        durationMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("duration", "60")));
+        intervalMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("interval", "10")));
+        keys = Integer.parseInt(options.getOrDefault("keys", "100000"));
+        for (String entry : options.getOrDefault("mix", "read=85,write=13,save=1,backup=1,load=0").split(",")) {
+            String[] weight = entry.split("=");
+            mix[Operation.valueOf(weight[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(weight[1].trim());
+        }
+        if (Arrays.stream(mix).sum() <= 0) {
+            throw new IllegalArgumentException("Сумма весов операций должна быть положительной.");
+        }
+        zipfExponent = switch (options.getOrDefault("distribution", "uniform")) {
+            case "uniform" -> 0;
+            case "zipf" -> Double.parseDouble(options.getOrDefault("zipf", "0.99"));
+            default -> throw new IllegalArgumentException("Неизвестное распределение: " + options.get("distribution"));
+        };
+        for (int i = 0; i < interval.length; i++) {
+            interval[i] = new LatencyHistogram();
+            total[i] = new LatencyHistogram();
+            intervalErrors[i] = new AtomicLong();
+            totalErrors[i] = new AtomicLong();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                System.err.println("Неверный параметр: " + args[i]);
+                return;
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        new LoadGenerator(options).run();
+    }
+
+    private void run() throws Exception {
+        GameDatabase database = new GameDatabase(dbPath);
+        // Существующую базу используем как есть, пустую заполняем
+        OptionalInt maxId = database.streamGames().mapToInt(Game::getId).max();
+        if (maxId.isPresent()) {
+            keys = maxId.getAsInt() + 1;
+        } else {
+            populate(database);
+        }
+        distribution = new KeyDistribution(keys, zipfExponent);
+        String backupPath = tempPath("loadgen", ".bak");
+
+        System.out.printf("База: %s, игр: %d, потоков: %d, длительность: %d с%n",
+                dbPath, keys, threads, TimeUnit.MILLISECONDS.toSeconds(durationMillis));
+
+        GcMonitor gcMonitor = new GcMonitor();
+        try (AsyncGameDatabase async = new AsyncGameDatabase(database)) {
+            long deadline = System.currentTimeMillis() + durationMillis;
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(Thread.ofPlatform().name("loadgen-" + i).start(() -> work(async, backupPath, deadline)));
+            }
+
+            long start = System.currentTimeMillis();
+            while (System.currentTimeMillis() < deadline) {
+                Thread.sleep(Math.min(intervalMillis, Math.max(1, deadline - System.currentTimeMillis())));
+                report("t=" + TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - start) + "s", drainInterval(),
+                        drainIntervalErrors(), gcMonitor.drainInterval(), gcMonitor);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            System.out.println("Итого:");
+            report("всего", total, Arrays.stream(totalErrors).mapToLong(AtomicLong::get).toArray(), gcMonitor.total(), gcMonitor);
+        } finally {
+            gcMonitor.close();
+            new File(backupPath).delete();
+        }
+    }
+
+    // Заполнение базы играми с id от 0 до keys - 1 (названия повторяются, как у серий игр)
+    private void populate(GameDatabase database) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int id = 0; id < keys; id++) {
+            database.addGame(new Game(id, title(id), new Date(random.nextLong(0, System.currentTimeMillis())),
+                    Math.round(random.nextDouble(0, 10) * 10) / 10.0));
+        }
+        database.save();
+    }
+
+    private String title(int id) {
+        return "Game " + id % Math.max(1, keys / 10);
+    }
+
+    // Цикл рабочего потока
+    private void work(AsyncGameDatabase async, String backupPath, long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.currentTimeMillis() < deadline) {
+            Operation operation = pick(random);
+            int id = distribution.next(random);
+            long start = System.nanoTime();
+            try {
+                switch (operation) {
+                    case READ -> {
+                        if (random.nextBoolean()) {
+                            async.search("id", id).join();
+                        } else {
+                            async.search("title", title(id)).join();
+                        }
+                    }
+                    case WRITE -> async.update(id, null, null, Math.round(random.nextDouble(0, 10) * 10) / 10.0).join();
+                    case SAVE -> async.save().join();
+                    case BACKUP -> async.backup(backupPath).join();
+                    case LOAD -> async.load().join();
+                }
+            } catch (RuntimeException e) {
+                intervalErrors[operation.ordinal()].incrementAndGet();
+                totalErrors[operation.ordinal()].incrementAndGet();
+                continue;
+            }
+            long elapsed = System.nanoTime() - start;
+            interval[operation.ordinal()].record(elapsed);
+            total[operation.ordinal()].record(elapsed);
+        }
+    }
+
+    // Выбор операции по весам
+    private Operation pick(ThreadLocalRandom random) {
+        int value = random.nextInt(Arrays.stream(mix).sum());
+        for (Operation operation : Operation.values()) {
+            value -= mix[operation.ordinal()];
+            if (value < 0) {
+                return operation;
+            }
+        }
+        return Operation.READ;
+    }
+
+    private LatencyHistogram[] drainInterval() {
+        LatencyHistogram[] snapshot = new LatencyHistogram[interval.length];
+        for (int i = 0; i < interval.length; i++) {
+            snapshot[i] = interval[i].snapshotAndReset();
+        }
+        return snapshot;
+    }
+
+    private long[] drainIntervalErrors() {
+        long[] snapshot = new long[intervalErrors.length];
+        for (int i = 0; i < intervalErrors.length; i++) {
+            snapshot[i] = intervalErrors[i].getAndSet(0);
+        }
+        return snapshot;
+    }
+
+    // Печать отчета: задержки в микросекундах, паузы GC в миллисекундах, куча в мегабайтах
+    private void report(String label, LatencyHistogram[] histograms, long[] errors, long[] gc, GcMonitor gcMonitor) {
+        long liveHeap = gcMonitor.liveHeap();
+        if (liveHeap < 0) {
+            System.out.printf("[%s] GC: %d пауз, %d мс; сборок еще не было%n", label, gc[0], gc[1]);
+        } else {
+            System.out.printf("[%s] GC: %d пауз, %d мс; живые данные после GC: %.1f МБ (%+.1f МБ с первой сборки)%n", label,
+                    gc[0], gc[1], liveHeap / 1048576.0, (liveHeap - gcMonitor.firstLiveHeap()) / 1048576.0);
+        }
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = histograms[operation.ordinal()];
+            long count = histogram.count();
+            if (count == 0 && errors[operation.ordinal()] == 0) {
+                continue;
+            }
+            System.out.printf("  %-6s n=%-9d p50=%-9d p99=%-9d p999=%-9d max=%-9d ошибок=%d (мкс)%n", operation, count,
+                    micros(histogram.percentile(50)), micros(histogram.percentile(99)),
+                    micros(histogram.percentile(99.9)), micros(histogram.max()), errors[operation.ordinal()]);
+        }
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    // Паузы сборки мусора и живые данные кучи по уведомлениям сборщиков. Паузы - {число, миллисекунды}.
+    // Счетчики GarbageCollectorMXBean не годятся: время конкурентных сборщиков (циклы ZGC и Shenandoah)
+    // идет параллельно с приложением, и его сумма с паузами завышает простой. Уведомления о конце
+    // конкурентного цикла пропускаются; паузы Remark и Cleanup из "G1 Concurrent GC" - настоящие и учитываются.
+    // Живые данные - занятая куча после сборки (getMemoryUsageAfterGc), а не текущая занятая куча,
+    // которая состоит в основном из еще не собранного мусора и скачет вместе с моментами сборок.
+    // У конкурентных сборщиков объем после сборки берется только из уведомлений о конце цикла
+    private static final class GcMonitor implements NotificationListener, AutoCloseable {
+        private static final String CONCURRENT_CYCLE = "end of GC cycle";
+
+        private final AtomicLong intervalCount = new AtomicLong();
+        private final AtomicLong intervalMillis = new AtomicLong();
+        private final AtomicLong totalCount = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private final Set<String> heapPools = new HashSet<>(); // Пулы памяти кучи
+        private final boolean concurrentCollector; // Сборщик сообщает о конкурентных циклах (ZGC, Shenandoah)
+        private volatile long firstLiveHeap = -1; // Живые данные после первой сборки прогона (-1 - сборок не было)
+        private volatile long liveHeap = -1; // Живые данные после последней сборки
+
+        private GcMonitor() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapPools.add(pool.getName());
+                }
+            }
+            boolean cycles = false;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                cycles |= gc.getName().endsWith("Cycles");
+                if (gc instanceof NotificationEmitter emitter) {
+                    emitter.addNotificationListener(this, null, null);
+                }
+            }
+            concurrentCollector = cycles;
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            boolean cycle = CONCURRENT_CYCLE.equals(info.getGcAction());
+            if (cycle || !concurrentCollector) {
+                long live = 0;
+                for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+                    if (heapPools.contains(pool.getKey())) {
+                        live += pool.getValue().getUsed();
+                    }
+                }
+                if (firstLiveHeap < 0) {
+                    firstLiveHeap = live;
+                }
+                liveHeap = live;
+            }
+            if (cycle) {
+                return;
+            }
+            long millis = info.getGcInfo().getDuration();
+            intervalCount.incrementAndGet();
+            intervalMillis.addAndGet(millis);
+            totalCount.incrementAndGet();
+            totalMillis.addAndGet(millis);
+        }
+
+        private long[] drainInterval() {
+            return new long[]{intervalCount.getAndSet(0), intervalMillis.getAndSet(0)};
+        }
+
+        private long[] total() {
+            return new long[]{totalCount.get(), totalMillis.get()};
+        }
+
+        private long liveHeap() {
+            return liveHeap;
+        }
+
+        private long firstLiveHeap() {
+            return firstLiveHeap;
+        }
+
+        @Override
+        public void close() {
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (gc instanceof NotificationEmitter emitter) {
+                    try {
+                        emitter.removeNotificationListener(this);
+                    } catch (ListenerNotFoundException ignored) {
+                    }
+                }
+            }
+        }
+    }
+
+    private static String tempPath(String prefix, String suffix) {
+        try {
+            File file = File.createTempFile(prefix, suffix);
+            file.deleteOnExit();
+            return file.getAbsolutePath();
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось создать временный файл: " + e.getMessage());
+        }
+    }
+
+    // Распределение ключей: равномерное (s = 0) или Зипфа с параметром s
+    private static final class KeyDistribution {
+        private final int keys;
+        private final double[] cdf; // Накопленные вероятности для распределения Зипфа (null - равномерное)
+
+        private KeyDistribution(int keys, double s) {
+            this.keys = keys;
+            if (s <= 0) {
+                cdf = null;
+                return;
+            }
+            cdf = new double[keys];
+            double sum = 0;
+            for (int i = 0; i < keys; i++) {
+                sum += 1 / Math.pow(i + 1, s);
+                cdf[i] = sum;
+            }
+            for (int i = 0; i < keys; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        private int next(ThreadLocalRandom random) {
+            if (cdf == null) {
+                return random.nextInt(keys);
+            }
+            int index = Arrays.binarySearch(cdf, random.nextDouble());
+            return Math.min(keys - 1, index >= 0 ? index : -index - 1);
+        }
+    }
+}
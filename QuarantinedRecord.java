@@ -0,0 +1,5 @@
+package org.example;
+
+// Запись, не прошедшая проверку при загрузке: номер строки в файле, сама строка и причина
+public record QuarantinedRecord(int lineNumber, String line, String reason) {
+}
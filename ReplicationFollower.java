@@ -0,0 +1,174 @@
+package org.example;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+// Ведомый узел репликации: применяет журнал ведущего к локальной базе и обслуживает чтение
+// с ограниченным отставанием. При обрыве связи переподключается и догоняет ведущего
+// по хвосту журнала, а если хвост уже недоступен - по снимку.
+public class ReplicationFollower implements AutoCloseable {
+    private static final long RECONNECT_MILLIS = 1000; // Пауза перед повторным подключением
+
+    private final GameDatabase database; // Локальная копия базы
+    private final String host;
+    private final int port;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock(); // Чтение копии против применения журнала
+    private volatile long epoch; // Эпоха ведущего, с которым синхронизирована копия (0 - неизвестна)
+    private volatile long appliedSequence; // Номер последнего примененного события
+    private volatile long leaderSequence; // Номер последнего события ведущего из heartbeat
+    private volatile long syncedAtMillis; // Время, когда копия последний раз полностью догнала ведущего
+    private volatile boolean closed;
+    private volatile Socket socket;
+    private final Thread thread;
+
+    // Конструктор
+    public ReplicationFollower(GameDatabase database, String host, int port) {
+        this.database = database;
+        this.host = host;
+        this.port = port;
+        this.thread = Thread.ofVirtual().name("replication-follower").start(this::run);
+    }
+
+    // Чтение из локальной копии, если она отстает от ведущего не более чем на maxStalenessMillis
+    public <T> T read(Function<GameDatabase, T> query, long maxStalenessMillis) {
+        lock.readLock().lock();
+        try {
+            long staleness = getStalenessMillis();
+            if (staleness > maxStalenessMillis) {
+                throw new IllegalStateException("Реплика отстает от ведущего на " + staleness + " мс");
+            }
+            return query.apply(database);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Время с момента, когда копия последний раз полностью догнала ведущего
+    public long getStalenessMillis() {
+        return syncedAtMillis == 0 ? Long.MAX_VALUE : System.currentTimeMillis() - syncedAtMillis;
+    }
+
+    // Номер последнего примененного события
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    // Отставание в событиях по последнему heartbeat
+    public long getLag() {
+        return Math.max(0, leaderSequence - appliedSequence);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+            }
+        }
+        thread.interrupt();
+    }
+
+    private void run() {
+        while (!closed) {
+            try (Socket s = new Socket(host, port)) {
+                socket = s;
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                out.writeLong(epoch);
+                out.writeLong(appliedSequence);
+                out.flush();
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                while (!closed) {
+                    byte tag = in.readByte();
+                    switch (tag) {
+                        case ReplicationProtocol.SNAPSHOT -> applySnapshot(in);
+                        case ReplicationProtocol.EVENT -> apply(ReplicationProtocol.readEvent(in));
+                        case ReplicationProtocol.HEARTBEAT -> {
+                            long sentSequence = in.readLong();
+                            leaderSequence = in.readLong();
+                            // Все события до sentSequence уже прочитаны из потока и применены
+                            if (sentSequence >= leaderSequence) {
+                                syncedAtMillis = System.currentTimeMillis();
+                            }
+                        }
+                        default -> throw new IOException("Неизвестный тип сообщения: " + tag);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    System.err.println("Потеряна связь с ведущим: " + e.getMessage());
+                }
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void applySnapshot(DataInputStream in) throws IOException {
+        long snapshotEpoch = in.readLong();
+        long snapshotSequence = in.readLong();
+        int count = in.readInt();
+        lock.writeLock().lock();
+        try {
+            database.clearDatabase();
+            for (int i = 0; i < count; i++) {
+                database.addGame(ReplicationProtocol.readGame(in));
+            }
+            epoch = snapshotEpoch;
+            appliedSequence = snapshotSequence;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(ChangeEvent event) {
+        lock.writeLock().lock();
+        try {
+            switch (event.type()) {
+                case INSERT -> database.addGame(event.after());
+                case UPDATE -> {
+                    Game after = event.after();
+                    database.updateGame(after.getId(), after.getTitle(), after.getReleaseDate(), after.getRating());
+                }
+                case DELETE -> database.removeGame(event.before().getId());
+                case CLEAR -> database.clearDatabase();
+            }
+            appliedSequence = event.sequence();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Запуск ведомого из командной строки: java org.example.ReplicationFollower <хост> <порт> <файл базы>
+    // Раз в секунду печатает состояние копии; при завершении сохраняет копию в файл
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length != 3) {
+            System.err.println("Использование: ReplicationFollower <хост> <порт> <файл базы>");
+            return;
+        }
+        GameDatabase database = new GameDatabase(args[2]);
+        ReplicationFollower follower = new ReplicationFollower(database, args[0], Integer.parseInt(args[1]));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            follower.close();
+            follower.read(db -> {
+                db.save();
+                return null;
+            }, Long.MAX_VALUE);
+        }));
+        while (true) {
+            Thread.sleep(1000);
+            long staleness = follower.getStalenessMillis();
+            long count = follower.read(db -> db.streamGames().count(), Long.MAX_VALUE);
+            System.out.println("Событие " + follower.getAppliedSequence() + ", отставание " + follower.getLag()
+                    + " событий / " + (staleness == Long.MAX_VALUE ? "-" : staleness + " мс") + ", игр: " + count);
+        }
+    }
+}
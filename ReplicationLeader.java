@@ -0,0 +1,306 @@
+package org.example;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Ведущий узел репликации: рассылает журнал изменений базы данных ведомым узлам по TCP.
+// Новому или безнадежно отставшему ведомому сначала отправляется снимок, затем хвост журнала.
+// Медленный или зависший ведомый отключается и не может задержать изменения базы.
+public class ReplicationLeader implements AutoCloseable {
+    static final long HEARTBEAT_MILLIS = 100; // Период отправки heartbeat
+    static final long WRITE_TIMEOUT_MILLIS = 5000; // Предельное время одной записи в сокет ведомого
+    private static final int SNAPSHOT_CHUNK_BYTES = 64 * 1024; // Размер блока при отправке снимка
+
+    private final ChangeFeed feed; // Лента изменений реплицируемой базы
+    private final long epoch = ThreadLocalRandom.current().nextLong(); // Идентификатор запуска ведущего
+    private final NavigableMap<Integer, Game> state = new TreeMap<>(); // Зеркало базы, построенное по ленте
+    private long stateSequence; // Номер последнего события, отраженного в зеркале
+    private final ChangeFeed.Subscription mirror; // Подписка, поддерживающая зеркало
+    private final ServerSocket serverSocket;
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet(); // Подключенные ведомые
+    private volatile boolean closed;
+
+    // Конструктор; вызывать в потоке, который изменяет базу, чтобы начальный снимок был согласован с лентой
+    public ReplicationLeader(GameDatabase database, int port) throws IOException {
+        this.feed = database.getChangeFeed();
+        database.streamGames().forEach(game -> state.put(game.getId(), game.copy()));
+        stateSequence = feed.lastSequence();
+        mirror = feed.subscribe(stateSequence + 1, this::applyToMirror);
+        serverSocket = new ServerSocket(port);
+        Thread.ofVirtual().name("replication-accept").start(this::acceptLoop);
+        Thread.ofVirtual().name("replication-watchdog").start(this::watchdogLoop);
+    }
+
+    // Порт, на котором ведущий принимает подключения
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // Количество подключенных ведомых
+    public int getFollowerCount() {
+        return sessions.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        mirror.close();
+        serverSocket.close();
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+    private void applyToMirror(ChangeEvent event) {
+        synchronized (state) {
+            switch (event.type()) {
+                case INSERT, UPDATE -> state.put(event.after().getId(), event.after());
+                case DELETE -> state.remove(event.before().getId());
+                case CLEAR -> state.clear();
+            }
+            stateSequence = event.sequence();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread.ofVirtual().name("replication-session").start(() -> handshake(socket));
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Ошибка приема подключения: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handshake(Socket socket) {
+        Session session = null;
+        try {
+            socket.setSoTimeout((int) WRITE_TIMEOUT_MILLIS); // Ведомый должен представиться без задержки
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            long followerEpoch = in.readLong();
+            long followerSequence = in.readLong();
+            session = new Session(socket);
+            sessions.add(session); // С этого момента сторожевой поток следит за зависшими записями
+            session.lock.lock();
+            try {
+                List<Game> snapshot = null;
+                long snapshotSequence = 0;
+                synchronized (state) {
+                    // Пока держим блокировку зеркала, события после stateSequence не могут быть вытеснены из ленты
+                    if (followerEpoch == epoch) {
+                        try {
+                            session.subscription = feed.subscribe(followerSequence + 1, session::send, session::close);
+                            session.sentSequence = followerSequence;
+                        } catch (IllegalArgumentException e) {
+                            // Хвост уже вытеснен из ленты - нужен снимок
+                        }
+                    }
+                    if (session.subscription == null) {
+                        snapshot = new ArrayList<>(state.values());
+                        snapshotSequence = stateSequence;
+                        session.subscription = feed.subscribe(snapshotSequence + 1, session::send, session::close);
+                        session.sentSequence = snapshotSequence;
+                    }
+                }
+                if (snapshot != null) {
+                    session.out.writeByte(ReplicationProtocol.SNAPSHOT);
+                    session.out.writeLong(epoch);
+                    session.out.writeLong(snapshotSequence);
+                    session.out.writeInt(snapshot.size());
+                    for (Game game : snapshot) {
+                        ReplicationProtocol.writeGame(session.out, game);
+                        if (session.pending.size() >= SNAPSHOT_CHUNK_BYTES) {
+                            session.flush();
+                        }
+                    }
+                }
+                session.flush();
+            } finally {
+                session.lock.unlock();
+            }
+            Thread.ofVirtual().name("replication-heartbeat").start(session::heartbeatLoop);
+        } catch (IOException e) {
+            System.err.println("Ошибка подключения ведомого: " + e.getMessage());
+            if (session != null) {
+                session.close();
+            } else {
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    // Сторожевой поток: закрывает соединения, запись в которые зависла дольше WRITE_TIMEOUT_MILLIS.
+    // Сам он ничего не пишет, поэтому зависший ведомый не может его остановить
+    private void watchdogLoop() {
+        while (!closed) {
+            long now = System.currentTimeMillis();
+            for (Session session : sessions) {
+                long started = session.writeStartedAt;
+                if (started != 0 && now - started > WRITE_TIMEOUT_MILLIS) {
+                    System.err.println("Ведомый не принимает данные дольше " + WRITE_TIMEOUT_MILLIS + " мс, соединение закрыто");
+                    session.close();
+                }
+            }
+            try {
+                Thread.sleep(HEARTBEAT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Соединение с одним ведомым. Подписка на ленту не сдерживает базу: отставший на весь буфер
+    // ведомый отключается и при переподключении получает снимок
+    private final class Session {
+        private final Socket socket;
+        // Сообщения собираются в памяти и уходят в сокет готовыми блоками: методы DataOutputStream
+        // synchronized, и блокировка на сокете внутри них заняла бы поток-носитель виртуального потока
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(pending);
+        private final OutputStream socketOut;
+        private final ReentrantLock lock = new ReentrantLock(); // Запись в сокет (не synchronized, чтобы не занимать поток-носитель)
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile long writeStartedAt; // Время начала текущей записи в сокет (0 - записи нет)
+        private ChangeFeed.Subscription subscription;
+        private long sentSequence; // Номер последнего отправленного события (под блокировкой lock)
+
+        private Session(Socket socket) throws IOException {
+            this.socket = socket;
+            this.socketOut = new WatchedOutputStream(socket.getOutputStream());
+        }
+
+        // Отправка подготовленных сообщений (под блокировкой lock)
+        private void flush() throws IOException {
+            byte[] bytes = pending.toByteArray();
+            pending.reset();
+            socketOut.write(bytes, 0, bytes.length);
+        }
+
+        // Отправка события из ленты (вызывается в потоке подписки)
+        private void send(ChangeEvent event) {
+            lock.lock();
+            try {
+                ReplicationProtocol.writeEvent(out, event);
+                flush();
+                sentSequence = event.sequence();
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Heartbeat этому ведомому в собственном потоке: медленный ведомый задерживает только себя
+        private void heartbeatLoop() {
+            while (!closed.get()) {
+                lock.lock();
+                try {
+                    out.writeByte(ReplicationProtocol.HEARTBEAT);
+                    out.writeLong(sentSequence);
+                    out.writeLong(feed.lastSequence());
+                    flush();
+                } catch (IOException e) {
+                    close();
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    Thread.sleep(HEARTBEAT_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            sessions.remove(this);
+            if (subscription != null) {
+                subscription.close();
+            }
+            closeQuietly(socket); // Прерывает зависшую запись в сокет
+        }
+
+        // Поток сокета, отмечающий время начала каждой записи для сторожевого потока
+        private final class WatchedOutputStream extends FilterOutputStream {
+            private WatchedOutputStream(OutputStream out) {
+                super(out);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                writeStartedAt = System.currentTimeMillis();
+                try {
+                    out.write(b);
+                } finally {
+                    writeStartedAt = 0;
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                writeStartedAt = System.currentTimeMillis();
+                try {
+                    out.write(b, off, len);
+                } finally {
+                    writeStartedAt = 0;
+                }
+            }
+        }
+    }
+
+    // Запуск ведущего из командной строки: java org.example.ReplicationLeader <файл базы> <порт>
+    // Команды из stdin: add <игра>, update <игра>, remove <id>, save, quit (игра в формате файла базы)
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Использование: ReplicationLeader <файл базы> <порт>");
+            return;
+        }
+        GameDatabase database = new GameDatabase(args[0]);
+        try (ReplicationLeader leader = new ReplicationLeader(database, Integer.parseInt(args[1]));
+             BufferedReader console = new BufferedReader(new InputStreamReader(System.in))) {
+            System.out.println("Ведущий запущен на порту " + leader.getPort());
+            String line;
+            while ((line = console.readLine()) != null) {
+                String[] command = line.trim().split(" ", 2);
+                try {
+                    switch (command[0]) {
+                        case "add" -> database.addGame(Game.fromString(command[1]));
+                        case "update" -> {
+                            Game game = Game.fromString(command[1]);
+                            database.updateGame(game.getId(), game.getTitle(), game.getReleaseDate(), game.getRating());
+                        }
+                        case "remove" -> database.removeGame(Integer.parseInt(command[1]));
+                        case "save" -> database.save();
+                        case "quit" -> {
+                            return;
+                        }
+                        default -> System.err.println("Неизвестная команда: " + command[0]);
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Ошибка: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
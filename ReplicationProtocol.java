@@ -0,0 +1,48 @@
+package org.example;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Формат сообщений репликации между ведущим и ведомыми узлами.
+// Ведомый при подключении отправляет эпоху ведущего и номер последнего примененного события,
+// ведущий отвечает снимком (SNAPSHOT) либо сразу хвостом журнала (EVENT) и периодически шлет HEARTBEAT.
+final class ReplicationProtocol {
+    static final byte SNAPSHOT = 'S'; // long эпоха, long номер события, int количество, игры
+    static final byte EVENT = 'E';    // long номер, byte тип, игра до, игра после
+    static final byte HEARTBEAT = 'H'; // long номер последнего отправленного события, long номер последнего события ведущего
+
+    private ReplicationProtocol() {
+    }
+
+    // Запись игры (null допускается) в формате файла базы данных
+    static void writeGame(DataOutputStream out, Game game) throws IOException {
+        out.writeBoolean(game != null);
+        if (game != null) {
+            out.writeUTF(game.toString());
+        }
+    }
+
+    // Чтение игры, записанной writeGame
+    static Game readGame(DataInputStream in) throws IOException {
+        return in.readBoolean() ? Game.fromString(in.readUTF()) : null;
+    }
+
+    // Запись события журнала
+    static void writeEvent(DataOutputStream out, ChangeEvent event) throws IOException {
+        out.writeByte(EVENT);
+        out.writeLong(event.sequence());
+        out.writeByte(event.type().ordinal());
+        writeGame(out, event.before());
+        writeGame(out, event.after());
+    }
+
+    // Чтение события журнала (после байта EVENT)
+    static ChangeEvent readEvent(DataInputStream in) throws IOException {
+        long sequence = in.readLong();
+        ChangeEvent.Type type = ChangeEvent.Type.values()[in.readByte()];
+        Game before = readGame(in);
+        Game after = readGame(in);
+        return new ChangeEvent(sequence, type, before, after, System.currentTimeMillis());
+    }
+}
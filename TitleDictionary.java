@@ -0,0 +1,229 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+// Словарь названий: каждое различное название хранится один раз и получает целочисленный id.
+// Названия, совпадающие без учета регистра, объединяются в группу со своим id - по нему строится индекс.
+// Поиск не создает новых строк: регистр сворачивается посимвольно при подсчете хеша и сравнении.
+// У названия есть счетчик ссылок: название, на которое больше не ссылается ни одна игра, удаляется
+// из словаря, а его id (и id опустевшей группы) используется повторно.
+final class TitleDictionary {
+    private String[] titles = new String[16]; // Каноническое название по id (null - id свободен)
+    private int[] refCounts = new int[16]; // Число ссылок на название по id
+    private int[] foldIds = new int[16]; // Id группы по id названия; у свободного id - следующий свободный id
+    private String[] foldKeys = new String[16]; // Название-представитель по id группы (null - id свободен)
+    private int[] foldHashes = new int[16]; // Свернутый хеш группы по id группы
+    private int[] foldSizes = new int[16]; // Число названий в группе; у свободного id - следующий свободный id
+    private int size; // Число названий
+    private int idCount; // Число выданных id названий (занятых и свободных)
+    private int freeId = -1; // Первый свободный id названия (-1 - нет)
+    private int foldCount; // Число групп
+    private int foldIdCount; // Число выданных id групп
+    private int freeFold = -1; // Первый свободный id группы (-1 - нет)
+    private int[] exactTable = new int[32]; // Открытая адресация по hashCode: id названия + 1 (0 - пусто)
+    private int[] foldTable = new int[32]; // Открытая адресация по свернутому хешу: id группы + 1 (0 - пусто)
+
+    // Id названия с добавлением ссылки на него; новое название добавляется в словарь
+    int intern(String title) {
+        int slot = spread(title.hashCode()) & (exactTable.length - 1);
+        while (exactTable[slot] != 0) {
+            int id = exactTable[slot] - 1;
+            if (titles[id].equals(title)) {
+                refCounts[id]++;
+                return id;
+            }
+            slot = (slot + 1) & (exactTable.length - 1);
+        }
+
+        int id;
+        if (freeId >= 0) {
+            id = freeId;
+            freeId = foldIds[id];
+        } else {
+            id = idCount++;
+            if (id == titles.length) {
+                titles = Arrays.copyOf(titles, id * 2);
+                refCounts = Arrays.copyOf(refCounts, id * 2);
+                foldIds = Arrays.copyOf(foldIds, id * 2);
+            }
+        }
+        size++;
+        titles[id] = title;
+        refCounts[id] = 1;
+        exactTable[slot] = id + 1;
+        foldIds[id] = internFold(title);
+        if (size * 2 > exactTable.length) {
+            exactTable = rehashExact(exactTable.length * 2);
+        }
+        return id;
+    }
+
+    // Снятие ссылки на название; название без ссылок удаляется, группа без названий - тоже
+    void release(String title) {
+        int slot = spread(title.hashCode()) & (exactTable.length - 1);
+        while (exactTable[slot] != 0) {
+            int id = exactTable[slot] - 1;
+            if (titles[id].equals(title)) {
+                if (--refCounts[id] == 0) {
+                    removeSlot(exactTable, slot, other -> spread(titles[other].hashCode()));
+                    releaseFold(foldIds[id]);
+                    titles[id] = null;
+                    foldIds[id] = freeId;
+                    freeId = id;
+                    size--;
+                }
+                return;
+            }
+            slot = (slot + 1) & (exactTable.length - 1);
+        }
+        throw new IllegalArgumentException("Названия нет в словаре: " + title);
+    }
+
+    // Каноническое название по id
+    String title(int id) {
+        return titles[id];
+    }
+
+    // Id группы без учета регистра по id названия
+    int foldId(int id) {
+        return foldIds[id];
+    }
+
+    // Число названий в словаре
+    int size() {
+        return size;
+    }
+
+    // Id группы для названия из словаря или произвольной строки (-1, если такой группы нет)
+    int findFoldId(String title) {
+        int foldHash = foldHash(title);
+        int slot = foldHash & (foldTable.length - 1);
+        while (foldTable[slot] != 0) {
+            int fold = foldTable[slot] - 1;
+            if (foldHashes[fold] == foldHash && foldKeys[fold].equalsIgnoreCase(title)) {
+                return fold;
+            }
+            slot = (slot + 1) & (foldTable.length - 1);
+        }
+        return -1;
+    }
+
+    // Очистка словаря
+    void clear() {
+        Arrays.fill(titles, 0, idCount, null);
+        Arrays.fill(foldKeys, 0, foldIdCount, null);
+        Arrays.fill(exactTable, 0);
+        Arrays.fill(foldTable, 0);
+        size = 0;
+        idCount = 0;
+        freeId = -1;
+        foldCount = 0;
+        foldIdCount = 0;
+        freeFold = -1;
+    }
+
+    private int internFold(String title) {
+        int fold = findFoldId(title);
+        if (fold >= 0) {
+            foldSizes[fold]++;
+            return fold;
+        }
+        if (freeFold >= 0) {
+            fold = freeFold;
+            freeFold = foldSizes[fold];
+        } else {
+            fold = foldIdCount++;
+            if (fold == foldKeys.length) {
+                foldKeys = Arrays.copyOf(foldKeys, fold * 2);
+                foldHashes = Arrays.copyOf(foldHashes, fold * 2);
+                foldSizes = Arrays.copyOf(foldSizes, fold * 2);
+            }
+        }
+        foldCount++;
+        foldKeys[fold] = title;
+        foldHashes[fold] = foldHash(title);
+        foldSizes[fold] = 1;
+        insertFold(foldTable, fold);
+        if (foldCount * 2 > foldTable.length) {
+            int[] table = new int[foldTable.length * 2];
+            for (int f = 0; f < foldIdCount; f++) {
+                if (foldKeys[f] != null) {
+                    insertFold(table, f);
+                }
+            }
+            foldTable = table;
+        }
+        return fold;
+    }
+
+    private void releaseFold(int fold) {
+        if (--foldSizes[fold] > 0) {
+            return;
+        }
+        int slot = foldHashes[fold] & (foldTable.length - 1);
+        while (foldTable[slot] != fold + 1) {
+            slot = (slot + 1) & (foldTable.length - 1);
+        }
+        removeSlot(foldTable, slot, other -> foldHashes[other]);
+        foldKeys[fold] = null;
+        foldSizes[fold] = freeFold;
+        freeFold = fold;
+        foldCount--;
+    }
+
+    private void insertFold(int[] table, int fold) {
+        int slot = foldHashes[fold] & (table.length - 1);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & (table.length - 1);
+        }
+        table[slot] = fold + 1;
+    }
+
+    // Удаление из таблицы с линейным пробированием: следующие элементы цепочки сдвигаются назад,
+    // чтобы поиск не останавливался на образовавшейся пустой ячейке
+    private static void removeSlot(int[] table, int slot, IntUnaryOperator hashOf) {
+        int mask = table.length - 1;
+        int hole = slot;
+        table[hole] = 0;
+        for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = hashOf.applyAsInt(table[next] - 1) & mask;
+            // Элемент остается на месте, если его исходная ячейка лежит между дырой и им самим
+            boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!stays) {
+                table[hole] = table[next];
+                table[next] = 0;
+                hole = next;
+            }
+        }
+    }
+
+    private int[] rehashExact(int capacity) {
+        int[] table = new int[capacity];
+        for (int id = 0; id < idCount; id++) {
+            if (titles[id] == null) {
+                continue;
+            }
+            int slot = spread(titles[id].hashCode()) & (capacity - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            table[slot] = id + 1;
+        }
+        return table;
+    }
+
+    // Хеш без учета регистра, согласованный с String.equalsIgnoreCase
+    private static int foldHash(String title) {
+        int hash = 0;
+        for (int i = 0; i < title.length(); i++) {
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(title.charAt(i)));
+        }
+        return spread(hash);
+    }
+
+    // Перемешиваем биты, чтобы младшие разряды таблицы заполнялись равномерно
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
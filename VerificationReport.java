@@ -0,0 +1,17 @@
+package org.example;
+
+import java.util.List;
+
+// Результат проверки файла базы данных
+public record VerificationReport(int records, int blocks, int damagedBlocks, List<Integer> corruptLines, int unverifiedRecords) {
+    // Повреждений не найдено
+    public boolean isClean() {
+        return damagedBlocks == 0 && corruptLines.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "Записей: " + records + ", блоков: " + blocks + ", поврежденных блоков: " + damagedBlocks
+                + ", поврежденные строки: " + corruptLines + ", без контрольной суммы: " + unverifiedRecords;
+    }
+}